@@ -0,0 +1,142 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ *  The {@code Benchmark} class times full compress and expand round trips over real files.
+ *  Each file is warmed up first, then every measured run is checked to expand back to the
+ *  original bytes. For each file it reports the compression ratio, compress and expand
+ *  throughput, p50 and p99 latency, the garbage collections and pause time during the
+ *  measured runs, and how many bytes were allocated per MB of input.
+ *  <p>
+ *  The code length is printed with the results, so runs made with different
+ *  {@code -DcodeLength} settings can be compared side by side.
+ *
+ *  @author Kieran Pichai
+ */
+public class Benchmark {
+    private static final int WARMUP_RUNS = 3;
+    // Enough runs that the nearest-rank p99 isn't just the slowest one
+    private static final int MEASURED_RUNS = 100;
+    private static final double MB = 1 << 20;
+
+    // don't instantiate
+    private Benchmark() { }
+
+    /**
+     * Benchmarks every file in turn and prints one line of results for each.
+     * @param files The files to benchmark.
+     * @param mode The dictionary growth mode, TextCompressor.LZW, LZMW or LZAP.
+     * @throws IOException if a file can't be read.
+     * @throws IllegalStateException if a round trip doesn't give back the original file.
+     */
+    public static void run(String[] files, int mode) throws IOException {
+        System.out.printf("code length %d, mode %d, %d warm-up and %d measured runs per file%n",
+                TextCompressor.CODE_LENGTH, mode, WARMUP_RUNS, MEASURED_RUNS);
+        System.out.printf("%-24s %10s %7s %10s %10s %9s %9s %9s %9s %5s %8s %10s%n",
+                "file", "bytes", "ratio", "comp MB/s", "exp MB/s", "comp p50", "comp p99",
+                "exp p50", "exp p99", "GCs", "GC ms", "alloc/MB");
+        for (String name : files) {
+            runFile(name, mode);
+        }
+    }
+
+    // Runs and reports the round trips for one file
+    private static void runFile(String name, int mode) throws IOException {
+        byte[] input = Files.readAllBytes(new File(name).toPath());
+        byte[] compressed = null;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            compressed = roundTrip(input, mode, null, null, 0);
+        }
+        long[] compressNanos = new long[MEASURED_RUNS];
+        long[] expandNanos = new long[MEASURED_RUNS];
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            compressed = roundTrip(input, mode, compressNanos, expandNanos, i);
+        }
+        long allocated = (allocatedBefore < 0) ? -1 : allocatedBytes() - allocatedBefore;
+        long gcCount = gcCount() - gcCountBefore;
+        long gcMillis = gcMillis() - gcMillisBefore;
+
+        double inputMB = input.length / MB;
+        String allocatedPerMB = (allocated < 0 || input.length == 0)
+                ? "n/a" : String.format("%.1fMB", allocated / MB / MEASURED_RUNS / inputMB);
+        System.out.printf("%-24s %10d %6.2f%% %10.2f %10.2f %7.2fms %7.2fms %7.2fms %7.2fms %5d %8d %10s%n",
+                new File(name).getName(), input.length,
+                100.0 * compressed.length / Math.max(1, input.length),
+                inputMB * MEASURED_RUNS / seconds(compressNanos), inputMB * MEASURED_RUNS / seconds(expandNanos),
+                percentile(compressNanos, 50), percentile(compressNanos, 99),
+                percentile(expandNanos, 50), percentile(expandNanos, 99),
+                gcCount, gcMillis, allocatedPerMB);
+    }
+
+    // Compresses and expands input once, recording the times at index run if times are given
+    private static byte[] roundTrip(byte[] input, int mode, long[] compressNanos, long[] expandNanos, int run) {
+        long start = System.nanoTime();
+        byte[] compressed = TextCompressor.compress(input, mode);
+        long middle = System.nanoTime();
+        byte[] expanded = TextCompressor.expand(compressed, mode);
+        long end = System.nanoTime();
+        if (!Arrays.equals(input, expanded)) {
+            throw new IllegalStateException("Round trip didn't give back the original input");
+        }
+        if (compressNanos != null) {
+            compressNanos[run] = middle - start;
+            expandNanos[run] = end - middle;
+        }
+        return compressed;
+    }
+
+    // Returns the total of the times in seconds
+    private static double seconds(long[] nanos) {
+        long total = 0;
+        for (long t : nanos) {
+            total += t;
+        }
+        return total / 1e9;
+    }
+
+    // Returns the p-th percentile of the times in milliseconds, using the nearest rank
+    private static double percentile(long[] nanos, int p) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1e6;
+    }
+
+    // Sums the collection counts of every garbage collector
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    // Sums the collection times of every garbage collector
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(gc.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    // Returns the bytes this thread has allocated so far, or -1 if the JVM can't tell us
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
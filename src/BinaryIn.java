@@ -0,0 +1,293 @@
+/******************************************************************************
+ *  Compilation:  javac BinaryIn.java
+ *  Execution:    java BinaryIn input output
+ *  Dependencies: none
+ *
+ *  This library is for reading binary data from an input stream.
+ *
+ *  % java BinaryIn abra.txt abraCopy.txt
+ *  % diff abra.txt abraCopy.txt
+ *
+ ******************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+
+/**
+ *  The <code>BinaryIn</code> data type provides methods for reading
+ *  in bits from a binary input stream. It can process the bits
+ *  one bit at a time (as a {@code boolean}),
+ *  8 bits at a time (as a {@code byte} or {@code char}),
+ *  32 bits at a time (as an {@code int}), or 64 bits at a time
+ *  (as a {@code long}).
+ *  <p>
+ *  The binary input stream can be from standard input, a file,
+ *  or any other {@code InputStream}.
+ *  <p>
+ *  All primitive types are assumed to be represented using their
+ *  standard Java representations, in big-endian (most significant
+ *  byte first) order.
+ *  <p>
+ *  Unlike {@link BinaryStdIn}, several {@code BinaryIn} objects can be open at once.
+ *
+ *  @author Robert Sedgewick
+ *  @author Kevin Wayne
+ */
+public final class BinaryIn {
+    private static final int EOF = -1;   // end of file
+
+    private final InputStream in;          // the input stream
+    private int buffer;                    // one character buffer
+    private int n;                         // number of bits left in buffer
+
+    /**
+     * Initializes a binary input stream from standard input.
+     */
+    public BinaryIn() {
+        this(System.in);
+    }
+
+    /**
+     * Initializes a binary input stream from an {@code InputStream}.
+     * A {@code ByteArrayInputStream} is read directly, since its bytes are already in memory.
+     *
+     * @param is the {@code InputStream} object
+     */
+    public BinaryIn(InputStream is) {
+        in = (is instanceof ByteArrayInputStream) ? is : new BufferedInputStream(is);
+        fillBuffer();
+    }
+
+    private void fillBuffer() {
+        try {
+            buffer = in.read();
+            n = 8;
+        }
+        catch (IOException e) {
+            System.err.println("EOF");
+            buffer = EOF;
+            n = -1;
+        }
+    }
+
+    /**
+     * Returns true if this binary input stream is empty.
+     * @return {@code true} if this binary input stream is empty;
+     *         {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return buffer == EOF;
+    }
+
+    /**
+     * Discards whatever is left of the current byte, so that the next read starts
+     * at a byte boundary. Does nothing if the stream is already byte aligned.
+     */
+    public void alignToByte() {
+        if (n != 8 && !isEmpty()) fillBuffer();
+    }
+
+    /**
+     * Drops whatever is left of the current byte and starts reading again from the next byte of the
+     * underlying stream, so one binary input stream can read messages that are put into that stream
+     * one after another, even after it reached the end of an earlier one.
+     */
+    public void restart() {
+        fillBuffer();
+    }
+
+    /**
+     * Closes this binary input stream.
+     */
+    public void close() {
+        try {
+            in.close();
+        }
+        catch (IOException ioe) {
+            throw new IllegalStateException("Could not close BinaryIn", ioe);
+        }
+    }
+
+    /**
+     * Reads the next bit of data from this binary input stream and return as a boolean.
+     *
+     * @return the next bit of data from this binary input stream as a {@code boolean}
+     * @throws NoSuchElementException if this binary input stream is empty
+     */
+    public boolean readBoolean() {
+        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+        n--;
+        boolean bit = ((buffer >> n) & 1) == 1;
+        if (n == 0) fillBuffer();
+        return bit;
+    }
+
+    /**
+     * Reads the next 8 bits from this binary input stream and return as an 8-bit char.
+     *
+     * @return the next 8 bits of data from this binary input stream as a {@code char}
+     * @throws NoSuchElementException if there are fewer than 8 bits available
+     */
+    public char readChar() {
+        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+
+        // special case when aligned byte
+        if (n == 8) {
+            int x = buffer;
+            fillBuffer();
+            return (char) (x & 0xff);
+        }
+
+        // combine last n bits of current buffer with first 8-n bits of new buffer
+        int x = buffer;
+        x <<= (8 - n);
+        int oldN = n;
+        fillBuffer();
+        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+        n = oldN;
+        x |= (buffer >>> n);
+        return (char) (x & 0xff);
+        // the above code doesn't quite work for the last character if n = 8
+        // because buffer will be -1, so there is a special case for aligned byte
+    }
+
+    /**
+     * Reads the remaining bytes of data from this binary input stream and return as a string.
+     *
+     * @return the remaining bytes of data from this binary input stream as a {@code String},
+     *         or the empty String if nothing is left
+     */
+    public String readString() {
+        StringBuilder sb = new StringBuilder();
+        while (!isEmpty()) {
+            char c = readChar();
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads the next len bytes from this binary input stream into b, starting at off.
+     * If the stream is byte aligned, the bytes are copied straight through.
+     *
+     * @param b where to put the bytes
+     * @param off where in b to start
+     * @param len how many bytes to read
+     * @throws NoSuchElementException if there are fewer than len bytes available
+     */
+    public void readBytes(byte[] b, int off, int len) {
+        if (len == 0) return;
+        if (n != 8) {
+            for (int i = off; i < off + len; i++) {
+                b[i] = readByte();
+            }
+            return;
+        }
+        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+        // the first byte is already sitting in our buffer
+        b[off] = (byte) buffer;
+        try {
+            if (in.readNBytes(b, off + 1, len - 1) != len - 1) {
+                throw new NoSuchElementException("Reading from empty input stream");
+            }
+        }
+        catch (IOException e) {
+            throw new NoSuchElementException("Could not read from input stream");
+        }
+        fillBuffer();
+    }
+
+    /**
+     * Reads the next 32 bits from this binary input stream and return as a 32-bit int.
+     *
+     * @return the next 32 bits of data from this binary input stream as a {@code int}
+     * @throws NoSuchElementException if there are fewer than 32 bits available
+     */
+    public int readInt() {
+        int x = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = readChar();
+            x <<= 8;
+            x |= c;
+        }
+        return x;
+    }
+
+    /**
+     * Reads the next <em>r</em> bits from this binary input stream return as an <em>r</em>-bit int.
+     *
+     * @param  r number of bits to read
+     * @return the next {@code r} bits of data from this binary input stream as a {@code int}
+     * @throws NoSuchElementException if there are fewer than r bits available
+     * @throws IllegalArgumentException unless {@code 1 <= r <= 32}
+     */
+    public int readInt(int r) {
+        if (r < 1 || r > 32) throw new IllegalArgumentException("Illegal value of r = " + r);
+
+        // optimize r = 32 case
+        if (r == 32) return readInt();
+
+        // take as many bits as the current byte has left at a time, rather than one by one
+        int x = 0;
+        for (int left = r; left > 0; ) {
+            if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+            int take = Math.min(left, n);
+            n -= take;
+            x = (x << take) | ((buffer >>> n) & ((1 << take) - 1));
+            left -= take;
+            if (n == 0) fillBuffer();
+        }
+        return x;
+    }
+
+    /**
+     * Reads the next 64 bits from this binary input stream and return as a 64-bit long.
+     *
+     * @return the next 64 bits of data from this binary input stream as a {@code long}
+     * @throws NoSuchElementException if there are fewer than 64 bits available
+     */
+    public long readLong() {
+        long x = 0;
+        for (int i = 0; i < 8; i++) {
+            char c = readChar();
+            x <<= 8;
+            x |= c;
+        }
+        return x;
+    }
+
+    /**
+     * Reads the next 8 bits from this binary input stream and return as an 8-bit byte.
+     *
+     * @return the next 8 bits of data from this binary input stream as a {@code byte}
+     * @throws NoSuchElementException if there are fewer than 8 bits available
+     */
+    public byte readByte() {
+        char c = readChar();
+        return (byte) (c & 0xff);
+    }
+
+    /**
+     * Test client. Reads in the name of a file and copies its contents
+     * to the file named by the second argument.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if either file can not be opened
+     */
+    public static void main(String[] args) throws IOException {
+        BinaryIn  in  = new BinaryIn(new FileInputStream(args[0]));
+        BinaryOut out = new BinaryOut(new FileOutputStream(args[1]));
+
+        // read one 8-bit char at a time
+        while (!in.isEmpty()) {
+            char c = in.readChar();
+            out.write(c);
+        }
+        out.close();
+    }
+}
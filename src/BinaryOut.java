@@ -0,0 +1,265 @@
+/******************************************************************************
+ *  Compilation:  javac BinaryOut.java
+ *  Execution:    java BinaryOut
+ *  Dependencies: none
+ *
+ *  Write binary data to an output stream, either one 1-bit boolean,
+ *  one 8-bit char, one 32-bit int, one 64-bit double, one 32-bit float,
+ *  or one 64-bit long at a time. The output stream can be standard
+ *  output, a file, or any other {@code OutputStream}.
+ *
+ *  The bytes written are not aligned.
+ *
+ ******************************************************************************/
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ *  The <code>BinaryOut</code> data type provides a basic capability for
+ *  converting primitive type variables ({@code boolean}, {@code byte},
+ *  {@code char}, {@code int}, {@code long}, {@code float}, and {@code double})
+ *  to sequences of bits and writing them to an output stream.
+ *  The output stream can be standard output, a file, or any other {@code OutputStream}.
+ *  Uses big-endian (most-significant byte first).
+ *  <p>
+ *  The client must {@code flush()} the output stream when finished writing bits.
+ *  <p>
+ *  Unlike {@link BinaryStdOut}, several {@code BinaryOut} objects can be open at once,
+ *  which lets us write compressed data somewhere other than standard output.
+ *
+ *  @author Robert Sedgewick
+ *  @author Kevin Wayne
+ */
+public final class BinaryOut {
+    private final BufferedOutputStream out;  // the output stream
+    private int buffer;                      // 8-bit buffer of bits to write out
+    private int n;                           // number of bits remaining in buffer
+    private long bits;                       // number of bits written so far, counting padding
+
+    /**
+     * Initializes a binary output stream from standard output.
+     */
+    public BinaryOut() {
+        this(System.out);
+    }
+
+    /**
+     * Initializes a binary output stream from an {@code OutputStream}.
+     * @param os the {@code OutputStream}
+     */
+    public BinaryOut(OutputStream os) {
+        out = new BufferedOutputStream(os);
+    }
+
+    /**
+     * Writes the specified bit to the binary output stream.
+     */
+    private void writeBit(boolean bit) {
+        // add bit to buffer
+        buffer <<= 1;
+        if (bit) buffer |= 1;
+        bits++;
+
+        // if buffer is full (8 bits), write out as a single byte
+        n++;
+        if (n == 8) clearBuffer();
+    }
+
+    /**
+     * Writes the 8-bit byte to the binary output stream.
+     */
+    private void writeByte(int x) {
+        assert x >= 0 && x < 256;
+
+        // optimized if byte-aligned
+        if (n == 0) {
+            try {
+                out.write(x);
+                bits += 8;
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        // otherwise write one bit at a time
+        for (int i = 0; i < 8; i++) {
+            boolean bit = ((x >>> (8 - i - 1)) & 1) == 1;
+            writeBit(bit);
+        }
+    }
+
+    // write out any remaining bits in buffer to the binary output stream, padding with 0s
+    private void clearBuffer() {
+        if (n == 0) return;
+        if (n > 0) buffer <<= (8 - n);
+        bits += 8 - n;
+        try {
+            out.write(buffer);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        n = 0;
+        buffer = 0;
+    }
+
+    /**
+     * Returns the number of bits written so far, including any padding from flush().
+     * @return the number of bits written
+     */
+    public long bitsWritten() {
+        return bits;
+    }
+
+    /**
+     * Flushes the binary output stream, padding 0s if number of bits written so far
+     * is not a multiple of 8.
+     */
+    public void flush() {
+        clearBuffer();
+        try {
+            out.flush();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Flushes and closes the binary output stream.
+     * Once it is closed, bits can no longer be written.
+     */
+    public void close() {
+        flush();
+        try {
+            out.close();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the specified bit to the binary output stream.
+     * @param x the {@code boolean} to write
+     */
+    public void write(boolean x) {
+        writeBit(x);
+    }
+
+    /**
+     * Writes the 8-bit byte to the binary output stream.
+     * @param x the {@code byte} to write.
+     */
+    public void write(byte x) {
+        writeByte(x & 0xff);
+    }
+
+    /**
+     * Writes len bytes from b, starting at off, to the binary output stream.
+     * If the stream is byte aligned, the bytes are copied straight through.
+     * @param b the bytes to write
+     * @param off where in b to start
+     * @param len how many bytes to write
+     */
+    public void write(byte[] b, int off, int len) {
+        if (n != 0) {
+            for (int i = off; i < off + len; i++) {
+                writeByte(b[i] & 0xff);
+            }
+            return;
+        }
+        try {
+            out.write(b, off, len);
+            bits += 8L * len;
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the 32-bit int to the binary output stream.
+     * @param x the {@code int} to write
+     */
+    public void write(int x) {
+        writeByte((x >>> 24) & 0xff);
+        writeByte((x >>> 16) & 0xff);
+        writeByte((x >>>  8) & 0xff);
+        writeByte((x >>>  0) & 0xff);
+    }
+
+    /**
+     * Writes the <em>r</em>-bit int to the binary output stream.
+     * @param x the {@code int} to write
+     * @param r the number of relevant bits in the char
+     * @throws IllegalArgumentException unless {@code r} is between 1 and 32
+     * @throws IllegalArgumentException unless {@code x} is between 0 and 2<sup>r</sup> - 1
+     */
+    public void write(int x, int r) {
+        if (r == 32) {
+            write(x);
+            return;
+        }
+        if (r < 1 || r > 32)        throw new IllegalArgumentException("Illegal value for r = " + r);
+        if (x < 0 || x >= (1 << r)) throw new IllegalArgumentException("Illegal " + r + "-bit char = " + x);
+        for (int i = 0; i < r; i++) {
+            boolean bit = ((x >>> (r - i - 1)) & 1) == 1;
+            writeBit(bit);
+        }
+    }
+
+    /**
+     * Writes the 64-bit long to the binary output stream.
+     * @param x the {@code long} to write
+     */
+    public void write(long x) {
+        writeByte((int) ((x >>> 56) & 0xff));
+        writeByte((int) ((x >>> 48) & 0xff));
+        writeByte((int) ((x >>> 40) & 0xff));
+        writeByte((int) ((x >>> 32) & 0xff));
+        writeByte((int) ((x >>> 24) & 0xff));
+        writeByte((int) ((x >>> 16) & 0xff));
+        writeByte((int) ((x >>>  8) & 0xff));
+        writeByte((int) ((x >>>  0) & 0xff));
+    }
+
+    /**
+     * Writes the 8-bit char to the binary output stream.
+     * @param x the {@code char} to write
+     * @throws IllegalArgumentException unless {@code x} is between 0 and 255
+     */
+    public void write(char x) {
+        if (x < 0 || x >= 256) throw new IllegalArgumentException("Illegal 8-bit char = " + x);
+        writeByte(x);
+    }
+
+    /**
+     * Writes the string of 8-bit characters to the binary output stream.
+     * @param s the {@code String} to write
+     * @throws IllegalArgumentException if any character in the string is not
+     *         between 0 and 255
+     */
+    public void write(String s) {
+        for (int i = 0; i < s.length(); i++)
+            write(s.charAt(i));
+    }
+
+    /**
+     * Test client. Writes n integers to standard output in binary.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        int m = Integer.parseInt(args[0]);
+
+        BinaryOut out = new BinaryOut();
+        for (int i = 0; i < m; i++) {
+            out.write(i);
+        }
+        out.flush();
+    }
+}
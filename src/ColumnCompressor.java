@@ -0,0 +1,144 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ *  The {@code ColumnCompressor} class compresses delimited text (CSV, TSV, structured logs) one
+ *  column at a time. Every record is split on the delimiter, each column gets its own dictionary,
+ *  and the columns are compressed in parallel. Expanding puts the records back together row by row.
+ *  <p>
+ *  Each field is kept with the char that ended it, the delimiter or a newline, so rows with
+ *  different numbers of fields come back exactly as they were.
+ *  <p>
+ *  Container layout: delimiter (8 bits), mode (8 bits), whether the text ended in a newline (8 bits),
+ *  number of columns (32 bits), then for each column its compressed length (32 bits) and bytes.
+ *
+ *  @author Kieran Pichai
+ */
+public class ColumnCompressor {
+    private static final char NEWLINE = '\n';
+
+    // don't instantiate
+    private ColumnCompressor() { }
+
+    /**
+     * Compresses text column by column onto out.
+     * @param text The delimited text.
+     * @param delimiter The char between fields, which can't be a newline.
+     * @param mode The dictionary growth mode used for every column.
+     * @param out Where to write the container.
+     */
+    public static void compress(String text, char delimiter, int mode, BinaryOut out) {
+        if (delimiter == NEWLINE || delimiter >= 256) {
+            throw new IllegalArgumentException("Illegal delimiter: " + (int) delimiter);
+        }
+        boolean endsWithNewline = text.isEmpty() || text.charAt(text.length() - 1) == NEWLINE;
+        // Splits every row into its fields, appending each one to its column's stream
+        List<StringBuilder> columns = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf(NEWLINE, start);
+            if (end == -1) {
+                end = text.length();
+            }
+            int column = 0;
+            int fieldStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || text.charAt(i) == delimiter) {
+                    if (column == columns.size()) {
+                        columns.add(new StringBuilder());
+                    }
+                    // The last field of a row keeps a newline even if the text didn't have one
+                    char terminator = (i == end) ? NEWLINE : delimiter;
+                    columns.get(column++).append(text, fieldStart, i).append(terminator);
+                    fieldStart = i + 1;
+                }
+            }
+            start = end + 1;
+        }
+        // Each column has its own dictionary, so they can all be compressed at once
+        List<byte[]> compressed = columns.parallelStream()
+                .map(column -> compressColumn(column.toString(), mode))
+                .collect(Collectors.toList());
+        out.write(delimiter);
+        out.write((char) mode);
+        out.write((char) (endsWithNewline ? 1 : 0));
+        out.write(compressed.size());
+        for (byte[] column : compressed) {
+            out.write(column.length);
+            for (byte b : column) {
+                out.write(b);
+            }
+        }
+    }
+
+    /**
+     * Expands a container written by compress(), putting the rows back together.
+     * @param in Where to read the container from.
+     * @return the original text.
+     */
+    public static String expand(BinaryIn in) {
+        char delimiter = in.readChar();
+        int mode = in.readChar();
+        boolean endsWithNewline = in.readChar() == 1;
+        int count = in.readInt();
+        List<byte[]> compressed = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] column = new byte[in.readInt()];
+            for (int j = 0; j < column.length; j++) {
+                column[j] = in.readByte();
+            }
+            compressed.add(column);
+        }
+        List<String> columns = compressed.parallelStream()
+                .map(column -> expandColumn(column, mode))
+                .collect(Collectors.toList());
+        // Takes one field from each column in turn until a field ends with a newline
+        StringBuilder text = new StringBuilder();
+        int[] positions = new int[count];
+        while (count > 0 && positions[0] < columns.get(0).length()) {
+            for (int column = 0; ; column++) {
+                String values = columns.get(column);
+                int i = positions[column];
+                while (values.charAt(i) != delimiter && values.charAt(i) != NEWLINE) {
+                    i++;
+                }
+                text.append(values, positions[column], i + 1);
+                positions[column] = i + 1;
+                if (values.charAt(i) == NEWLINE) {
+                    break;
+                }
+            }
+        }
+        // Drops the newline we gave the last row if the text didn't end in one
+        if (!endsWithNewline && text.length() > 0) {
+            text.setLength(text.length() - 1);
+        }
+        return text.toString();
+    }
+
+    // Compresses one column with its own dictionary
+    private static byte[] compressColumn(String column, int mode) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryOut out = new BinaryOut(bytes);
+        LZWEncoder encoder = new LZWEncoder(mode);
+        encoder.encode(column, out);
+        encoder.finish(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    // Expands one column with its own dictionary
+    private static String expandColumn(byte[] column, int mode) {
+        BinaryIn in = new BinaryIn(new ByteArrayInputStream(column));
+        LZWDecoder decoder = new LZWDecoder(mode);
+        StringBuilder values = new StringBuilder();
+        String entry;
+        while ((entry = decoder.decodeNext(in)) != null) {
+            values.append(entry);
+        }
+        return values.toString();
+    }
+}
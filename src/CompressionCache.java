@@ -0,0 +1,216 @@
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *  The {@code CompressionCache} class remembers compressed results by the content of their input,
+ *  so compressing the same bytes again (repeated config dumps, retries) skips LZW entirely.
+ *  Results live in an in-memory LRU tier and, optionally, a directory on disk. Both tiers have
+ *  a size limit and drop their least recently used results first.
+ *  <p>
+ *  Inputs are keyed by code length, mode, length and a SHA-256 digest of their bytes, since the
+ *  code length and mode are the settings that change the compressed bytes for the same input.
+ *  A weaker hash would let two different inputs that collide share (wrong) results.
+ *
+ *  @author Kieran Pichai
+ */
+public class CompressionCache {
+    private static final String SUFFIX = ".lzw";
+
+    private final long maxMemoryBytes;
+    private final File directory;
+    private final long maxDiskBytes;
+    // Access ordered, so iterating starts with the least recently used result
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    // The results on disk and their sizes, also access ordered, so trimming doesn't have to list the directory
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private long memoryHits;
+    private long diskHits;
+    private long misses;
+
+    /**
+     * Creates a cache that only keeps results in memory.
+     * @param maxMemoryBytes The most compressed bytes to hold in memory.
+     */
+    public CompressionCache(long maxMemoryBytes) {
+        this(maxMemoryBytes, null, 0);
+    }
+
+    /**
+     * Creates a cache that keeps results in memory and in a directory on disk.
+     * @param maxMemoryBytes The most compressed bytes to hold in memory.
+     * @param directory Where to keep results on disk, created if it doesn't exist, or null for none.
+     * @param maxDiskBytes The most compressed bytes to hold on disk.
+     */
+    public CompressionCache(long maxMemoryBytes, File directory, long maxDiskBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Could not create cache directory " + directory);
+        }
+        // Picks up results left by earlier runs, oldest first so they are the first to go
+        File[] files = (directory == null) ? null : directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File f : files) {
+                String name = f.getName();
+                rememberOnDisk(name.substring(0, name.length() - SUFFIX.length()), f.length());
+            }
+        }
+    }
+
+    /**
+     * Returns the compressed form of input, from the cache if we have seen it before.
+     * Only looking results up and recording them holds the cache's lock, so callers on other
+     * threads don't wait while a miss is compressed or written to disk. Two threads that miss on
+     * the same input at once both compress it, and the second result replaces the first.
+     * @param input The bytes to compress.
+     * @param mode The dictionary growth mode, TextCompressor.LZW, LZMW or LZAP.
+     * @return the same bytes TextCompressor.compress() would return, in a new array the caller may change.
+     * @throws IOException if the disk tier can't be read or written.
+     */
+    public byte[] compress(byte[] input, int mode) throws IOException {
+        String key = key(input, mode);
+        synchronized (this) {
+            byte[] compressed = memory.get(key);
+            if (compressed != null) {
+                memoryHits++;
+                return compressed.clone();
+            }
+        }
+        File file = (directory == null) ? null : new File(directory, key + SUFFIX);
+        byte[] compressed = (file == null) ? null : readFromDisk(file);
+        boolean diskHit = compressed != null;
+        if (!diskHit) {
+            compressed = TextCompressor.compress(input, mode);
+            if (file != null && compressed.length <= maxDiskBytes) {
+                writeToDisk(file, key, compressed);
+            }
+            else {
+                file = null;
+            }
+        }
+        synchronized (this) {
+            if (diskHit) {
+                diskHits++;
+            }
+            else {
+                misses++;
+            }
+            if (file != null) {
+                rememberOnDisk(key, compressed.length);
+                trimDisk();
+            }
+            remember(key, compressed);
+        }
+        // Callers get their own copy, so changing it can't change what later hits return
+        return compressed.clone();
+    }
+
+    // Reads a result from disk, or returns null if there isn't one (another thread may have just evicted it)
+    private static byte[] readFromDisk(File file) throws IOException {
+        try {
+            byte[] compressed = Files.readAllBytes(file.toPath());
+            // Marks it as recently used for later runs, this run keeps its own order in disk
+            file.setLastModified(System.currentTimeMillis());
+            return compressed;
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // Writes a result to disk so readers only ever see a missing file or a whole one,
+    // even if we die partway through writing
+    private void writeToDisk(File file, String key, byte[] compressed) throws IOException {
+        Path temp = Files.createTempFile(directory.toPath(), key, ".tmp");
+        try {
+            Files.write(temp, compressed);
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Adds a result to the memory tier, dropping the least recently used ones to stay under the limit
+    private void remember(String key, byte[] compressed) {
+        if (compressed.length > maxMemoryBytes) {
+            return;
+        }
+        byte[] old = memory.put(key, compressed);
+        memoryBytes += compressed.length - ((old == null) ? 0 : old.length);
+        Iterator<Map.Entry<String, byte[]>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes) {
+            memoryBytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+
+    // Records a result on disk as the most recently used one, keeping the running total of their sizes
+    private void rememberOnDisk(String key, long length) {
+        Long old = disk.put(key, length);
+        diskBytes += length - ((old == null) ? 0 : old);
+    }
+
+    // Deletes the least recently used results on disk until the directory is under its limit
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes) {
+            Map.Entry<String, Long> entry = eldest.next();
+            diskBytes -= entry.getValue();
+            new File(directory, entry.getKey() + SUFFIX).delete();
+            eldest.remove();
+        }
+    }
+
+    // Builds the cache key for input from the code length, its mode, length and SHA-256 digest
+    private static String key(byte[] input, int mode) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(input);
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException("SHA-256 isn't available", e);
+        }
+        return TextCompressor.CODE_LENGTH + "-" + mode + "-" + input.length + "-"
+                + String.format("%064x", new BigInteger(1, digest));
+    }
+
+    public synchronized long getMemoryHits() {
+        return memoryHits;
+    }
+
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "memory hits: " + memoryHits + ", disk hits: " + diskHits + ", misses: " + misses
+                + ", memory bytes: " + memoryBytes;
+    }
+}
@@ -0,0 +1,74 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ *  The {@code CompressionContext} class compresses a sequence of messages, such as the requests
+ *  on one connection, with a single dictionary that keeps growing from message to message.
+ *  Each message ends with the EOF code as a sync marker and is padded out to a whole byte,
+ *  so it can be sent on its own. The other end must expand the messages, in the same order,
+ *  with one {@link ExpansionContext}.
+ *
+ *  @author Kieran Pichai
+ */
+public class CompressionContext {
+    private final LZWEncoder encoder;
+    // Where each compressed message is written, reused from message to message. Flushing leaves
+    // the BinaryOut on a byte boundary, so only the bytes need emptying before the next one
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final BinaryOut out = new BinaryOut(bytes);
+
+    /**
+     * Creates a context that uses plain LZW.
+     */
+    public CompressionContext() {
+        this(TextCompressor.LZW);
+    }
+
+    /**
+     * Creates a context with the given dictionary growth mode.
+     * @param mode TextCompressor.LZW, LZMW or LZAP, which the ExpansionContext must match.
+     */
+    public CompressionContext(int mode) {
+        encoder = new LZWEncoder(mode);
+    }
+
+    /**
+     * Compresses the next message, using everything the earlier messages added to the dictionary.
+     * @param message The bytes of the message.
+     * @return the compressed message, ending on a byte boundary.
+     */
+    public byte[] compress(byte[] message) {
+        bytes.reset();
+        encoder.encode(new String(message, StandardCharsets.ISO_8859_1), out);
+        // Writes EOF as the sync marker, and flushing pads us out to the end of the byte
+        encoder.finish(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Test client. Compresses each line of standard input as its own message, checks that it
+     * expands back, and prints how big each compressed message was.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if standard input can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        CompressionContext compressor = new CompressionContext();
+        ExpansionContext expander = new ExpansionContext();
+        BufferedReader lines = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.ISO_8859_1));
+        String line;
+        while ((line = lines.readLine()) != null) {
+            byte[] message = (line + "\n").getBytes(StandardCharsets.ISO_8859_1);
+            byte[] compressed = compressor.compress(message);
+            if (!Arrays.equals(message, expander.expand(compressed))) {
+                throw new IllegalStateException("Message didn't expand back to itself: " + line);
+            }
+            System.out.println(message.length + " -> " + compressed.length);
+        }
+    }
+}
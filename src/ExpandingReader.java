@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  The {@code ExpandingReader} class reads the text of a compressed stream lazily. Codes are only
+ *  decoded when the caller asks for more chars, one phrase (or one block of a stored run) at a time,
+ *  so reading just the first few lines of a big file only costs what those lines took to compress.
+ *  Closing the reader stops decoding and closes the compressed stream.
+ *  <p>
+ *  Each byte of the original text comes back as one char, as with {@code BinaryIn.readString()}.
+ *
+ *  @author Kieran Pichai
+ */
+public class ExpandingReader extends Reader {
+    private final BinaryIn in;
+    private final LZWDecoder decoder;
+    // The chars decoded but not yet read, and where we are in them
+    private String window = "";
+    private int position;
+    // Bytes left in the stored run we are in, or 0 if we are reading codes
+    private int storedLeft;
+    private boolean done;
+    private boolean closed;
+
+    /**
+     * Creates a reader over a stream written by TextCompressor's compress.
+     * @param compressed The compressed stream.
+     * @param mode The dictionary growth mode it was compressed with.
+     */
+    public ExpandingReader(InputStream compressed, int mode) {
+        in = new BinaryIn(compressed);
+        decoder = new LZWDecoder(mode);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Reader is closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        // Only decodes more once everything already decoded has been read
+        if (position == window.length() && !fill()) {
+            return -1;
+        }
+        int count = Math.min(len, window.length() - position);
+        window.getChars(position, position + count, cbuf, off);
+        position += count;
+        return count;
+    }
+
+    // Decodes the next phrase or block of stored bytes into our window, returning false at the end
+    private boolean fill() {
+        while (!done) {
+            if (storedLeft > 0) {
+                byte[] raw = new byte[Math.min(storedLeft, LZWEncoder.BLOCK_SIZE)];
+                in.readBytes(raw, 0, raw.length);
+                storedLeft -= raw.length;
+                setWindow(new String(raw, StandardCharsets.ISO_8859_1));
+                return true;
+            }
+            String entry = decoder.decodeNext(in);
+            if (entry != null) {
+                setWindow(entry);
+                return true;
+            }
+            storedLeft = LZWDecoder.readStoredLength(in);
+            if (storedLeft < 0) {
+                done = true;
+            }
+            else {
+                decoder.breakPhrase();
+            }
+        }
+        return false;
+    }
+
+    private void setWindow(String text) {
+        window = text;
+        position = 0;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            in.close();
+        }
+    }
+}
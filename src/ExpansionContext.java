@@ -0,0 +1,62 @@
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  The {@code ExpansionContext} class expands the messages written by one {@link CompressionContext},
+ *  keeping its dictionary in step with the compressing side from message to message.
+ *
+ *  @author Kieran Pichai
+ */
+public class ExpansionContext {
+    private final LZWDecoder decoder;
+    // The stream each message is read from and the BinaryIn over it, both reused from message to message
+    private final MessageStream source = new MessageStream();
+    private final BinaryIn in = new BinaryIn(source);
+
+    /**
+     * Creates a context that uses plain LZW.
+     */
+    public ExpansionContext() {
+        this(TextCompressor.LZW);
+    }
+
+    /**
+     * Creates a context with the given dictionary growth mode.
+     * @param mode TextCompressor.LZW, LZMW or LZAP, matching the CompressionContext.
+     */
+    public ExpansionContext(int mode) {
+        decoder = new LZWDecoder(mode);
+    }
+
+    /**
+     * Expands the next message. Messages must be expanded in the order they were compressed.
+     * @param message The compressed message.
+     * @return the bytes of the original message.
+     * @throws java.util.NoSuchElementException if the message is cut off before its sync marker.
+     */
+    public byte[] expand(byte[] message) {
+        source.set(message);
+        in.restart();
+        StringBuilder text = new StringBuilder();
+        String entry;
+        // Reads up to the sync marker, anything after it is just padding
+        while ((entry = decoder.decodeNext(in)) != null) {
+            text.append(entry);
+        }
+        return text.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    // A ByteArrayInputStream that can be pointed at the next message instead of making a new one for each
+    private static final class MessageStream extends ByteArrayInputStream {
+        MessageStream() {
+            super(new byte[0]);
+        }
+
+        void set(byte[] message) {
+            buf = message;
+            pos = 0;
+            mark = 0;
+            count = message.length;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ *  The {@code LZWDecoder} class holds the dictionary state on the expanding side of an LZW
+ *  code stream (or one of its LZMW and LZAP variants), adding codes in step with {@link LZWEncoder}.
+ *
+ *  @author Kieran Pichai
+ */
+public class LZWDecoder {
+    private final int mode;
+    private final int codesLen;
+    // Map used to access codes and their corresponding string values. A code's phrase is the first
+    // lengths[code] chars of codes[code], so the prefixes LZAP adds in one step can share one String
+    private final String[] codes;
+    private final int[] lengths;
+    // LZMW and LZAP skip duplicate phrases, so we also need to be able to look phrases up by value
+    private final TST known;
+    private int maxCode;
+    // The last phrase we expanded, needed to build the next code
+    private String val;
+
+    /**
+     * Creates a decoder with only the single character codes in its dictionary.
+     * @param mode The dictionary growth mode, TextCompressor.LZW, LZMW or LZAP.
+     */
+    public LZWDecoder(int mode) {
+        this.mode = mode;
+        codesLen = 1 << TextCompressor.CODE_LENGTH;
+        codes = new String[codesLen];
+        lengths = new int[codesLen];
+        known = (mode == TextCompressor.LZW) ? null : new TST();
+        // Fills it with known values (ASCII)
+        for (int i = 0; i < TextCompressor.EOF; i++) {
+            codes[i] = "" + (char) i;
+            lengths[i] = 1;
+            if (known != null) {
+                known.insert(codes[i], i);
+            }
+        }
+        maxCode = TextCompressor.FIRST_CODE;
+    }
+
+    /**
+     * Reads the next code from in and returns the phrase it stands for.
+     * @param in Where to read the code from.
+     * @return the expanded phrase, or null once the EOF code is read.
+     */
+    public String decodeNext(BinaryIn in) {
+        int nextCode = in.readInt(TextCompressor.CODE_LENGTH);
+        if (nextCode == TextCompressor.EOF) {
+            return null;
+        }
+        // Makes our entry string which represents what we will write out
+        String entry;
+        if (nextCode < maxCode && codes[nextCode] != null) {
+            entry = phrase(nextCode);
+        } else {
+            // Special case where we don't know where our current code to add, use know val instead
+            entry = val + val.charAt(0);
+        }
+        if (val != null) {
+            if (mode == TextCompressor.LZW) {
+                addCode(val + entry.charAt(0));
+            }
+            else {
+                // LZMW only adds the full concatenation, LZAP adds val plus every prefix of entry,
+                // skipping the ones we already have in one walk down known, just like the compressing side.
+                // Every code added here is a prefix of the same String, so we only build it once
+                String whole = val + entry;
+                int baseLength = val.length();
+                int shortest = (mode == TextCompressor.LZMW) ? entry.length() : 1;
+                known.extend(whole, 0, baseLength, whole.length(), shortest, maxCode, codesLen, length -> {
+                    codes[maxCode] = whole;
+                    lengths[maxCode++] = baseLength + length;
+                });
+            }
+        }
+        // Continues along codes by moving to next
+        val = entry;
+        return entry;
+    }
+
+    /**
+     * Expands codes from in onto out until the input runs out, copying any stored runs
+     * (see LZWEncoder.encodeBlocks()) straight through.
+     * @param in Where to read the codes from.
+     * @param out Where to write the expanded text.
+     */
+    public void decode(BinaryIn in, BinaryOut out) {
+        byte[] raw = new byte[LZWEncoder.BLOCK_SIZE];
+        while (true) {
+            String entry;
+            while ((entry = decodeNext(in)) != null) {
+                out.write(entry);
+            }
+            int left = readStoredLength(in);
+            if (left < 0) {
+                break;
+            }
+            for (; left > 0; left -= raw.length) {
+                int length = Math.min(left, raw.length);
+                in.readBytes(raw, 0, length);
+                out.write(raw, 0, length);
+            }
+            breakPhrase();
+        }
+    }
+
+    /**
+     * Reads the start of what follows an EOF code: anything after the padding up to the next byte
+     * is a stored run (see LZWEncoder.encodeBlocks()), its length and then its raw bytes, and then
+     * more codes. Every reader of stored runs goes through here, so the format lives in one place.
+     * @param in Where to read from, just past an EOF code.
+     * @return how many raw bytes of the stored run follow, or -1 if the input ends instead.
+     */
+    public static int readStoredLength(BinaryIn in) {
+        in.alignToByte();
+        if (in.isEmpty()) {
+            return -1;
+        }
+        return in.readInt();
+    }
+
+    /**
+     * Forgets the last phrase, just like the compressing side does after a stored run,
+     * so the next code doesn't add a phrase that spans the run.
+     */
+    public void breakPhrase() {
+        val = null;
+    }
+
+    // Checks if space left and if so adds phrase as our next code (LZMW and LZAP add theirs through known)
+    private void addCode(String phrase) {
+        if (maxCode >= codesLen) {
+            return;
+        }
+        codes[maxCode] = phrase;
+        lengths[maxCode++] = phrase.length();
+    }
+
+    // Returns the phrase for a code we already have
+    private String phrase(int code) {
+        String s = codes[code];
+        return (s.length() == lengths[code]) ? s : s.substring(0, lengths[code]);
+    }
+}
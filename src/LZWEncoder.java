@@ -0,0 +1,370 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntConsumer;
+
+/**
+ *  The {@code LZWEncoder} class holds the dictionary state of one LZW code stream
+ *  (or one of its LZMW and LZAP variants), so that the stream can be continued
+ *  across several calls to {@code encode()}, and saved to and restored from a checkpoint.
+ *
+ *  @author Kieran Pichai
+ */
+public class LZWEncoder {
+    // Size of the blocks we try coding before deciding whether to store them as is instead, and the byte
+    // entropy (in bits) above which we store a block without trying. Text sits around 4 to 5 bits,
+    // compressed or random data close to 8
+    static final int BLOCK_SIZE = 4096;
+    private static final double STORED_ENTROPY = 7.0;
+
+    // First byte of a checkpoint, so one written in an older layout is rejected rather than misread
+    private static final int CHECKPOINT_VERSION = 2;
+
+    private final int mode;
+    private final int codesLen;
+    private final TST codes;
+    private int nextCode;
+    // The last phrase written, LZW waits on the next char before it can add it to the dictionary.
+    // It is the previousLength chars of previousText from previousStart, so we never copy it out of the text
+    private String previousText;
+    private int previousStart;
+    private int previousLength;
+    private int previousCode;
+    // How each added code was built, so checkpoints stay compact: the code of the previous phrase plus a tail,
+    // which is the first tailLengths[code] chars of the phrase with code sourceCodes[code]
+    private final int[] baseCodes;
+    private final int[] sourceCodes;
+    private final int[] tailLengths;
+    // While trying a block, where each added code's phrase sits in the text it came from and the code
+    // that phrase had before, so the codes can be taken back if the block ends up stored
+    private boolean trial;
+    private String[] trialTexts;
+    private int[] trialStarts;
+    private int[] trialEnds;
+    private int[] trialReplaced;
+
+    /**
+     * Creates an encoder with only the single character codes in its dictionary.
+     * @param mode The dictionary growth mode, TextCompressor.LZW, LZMW or LZAP.
+     */
+    public LZWEncoder(int mode) {
+        this.mode = mode;
+        codesLen = 1 << TextCompressor.CODE_LENGTH;
+        codes = new TST();
+        // Assigns all initial values in the TST
+        for (int i = 0; i < TextCompressor.EOF; i++) {
+            codes.insert("" + (char) i, i);
+        }
+        nextCode = TextCompressor.FIRST_CODE;
+        previousCode = TST.EMPTY;
+        baseCodes = new int[codesLen];
+        sourceCodes = new int[codesLen];
+        tailLengths = new int[codesLen];
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * Compresses the given text, writing its codes onto out and carrying on from wherever
+     * the last call left the dictionary. No EOF is written, call finish() for that.
+     * @param text The text to compress.
+     * @param out Where to write the codes.
+     * @return the number of codes written.
+     */
+    public int encode(String text, BinaryOut out) {
+        int[] written = new int[1];
+        encode(text, 0, text.length(), code -> {
+            out.write(code, TextCompressor.CODE_LENGTH);
+            written[0]++;
+        });
+        return written[0];
+    }
+
+    // Codes text from start until we reach end, passing each code to out. The last phrase may run past end,
+    // so that a text coded a block at a time gives the same codes as coding it all at once
+    private int encode(String text, int start, int end, IntConsumer out) {
+        // Loops through our text
+        int i = start;
+        while (i < end) {
+            // Now that we know the next char, LZW can add the last phrase plus that char
+            if (mode == TextCompressor.LZW && previousText != null) {
+                addCode(text, i);
+            }
+            // Finds the longest phrase we have a code for, and its length, in one walk down the TST
+            int associatedCode = codes.match(text, i);
+            int length = codes.matchLength();
+            // Writes the code to the output file
+            out.accept(associatedCode);
+            // LZMW and LZAP only need phrases we've already written, so the decoder can do the same
+            if (mode != TextCompressor.LZW && previousText != null) {
+                // LZMW only adds the full concatenation, LZAP adds previous plus every prefix of current.
+                // extend() skips phrases we already have so we don't waste codes on duplicates
+                joinPrevious(text, i, length);
+                int tailStart = previousStart + previousLength;
+                int shortest = (mode == TextCompressor.LZMW) ? length : 1;
+                codes.extend(previousText, previousStart, tailStart, tailStart + length, shortest, nextCode, codesLen,
+                        tailLength -> added(tailLength, associatedCode, TST.EMPTY));
+            }
+            previousText = text;
+            previousStart = i;
+            previousLength = length;
+            previousCode = associatedCode;
+            // Increments our spot in the text string according to how much we wrote out in our prefix
+            i += length;
+        }
+        return i;
+    }
+
+    // Makes sure the previous phrase is followed by the count chars of text at i in previousText. That is
+    // always so within one text, otherwise (the first phrase of a later call) both are copied into a new String
+    private void joinPrevious(String text, int i, int count) {
+        if (previousText != text || previousStart + previousLength != i) {
+            previousText = previousText.substring(previousStart, previousStart + previousLength)
+                    + text.substring(i, i + count);
+            previousStart = 0;
+        }
+    }
+
+    /**
+     * Like encode(), but codes the text a block at a time and copies any block whose codes would
+     * take more room than its raw bytes (or whose bytes look random enough not to try) straight
+     * through instead. A run of such blocks is written as the EOF code, padding to the next byte,
+     * its length (32 bits) and its raw bytes, and then the codes carry on (LZWDecoder.readStoredLength()
+     * reads this back). Codes added while trying a stored block are taken back, and no phrase carries
+     * over a stored run, and the expanding side does the same. No final EOF is written, call finish() for that.
+     * @param text The text to compress.
+     * @param out Where to write the codes and stored runs.
+     */
+    public void encodeBlocks(String text, BinaryOut out) {
+        if (trialTexts == null) {
+            trialTexts = new String[codesLen];
+            trialStarts = new int[codesLen];
+            trialEnds = new int[codesLen];
+            trialReplaced = new int[codesLen];
+        }
+        int[] block = new int[BLOCK_SIZE];
+        int[] count = new int[1];
+        IntConsumer buffer = code -> block[count[0]++] = code;
+        // The run of blocks waiting to be stored, held back so that neighbouring blocks share one run
+        int storedStart = 0;
+        int storedEnd = 0;
+        int start = 0;
+        while (start < text.length()) {
+            int blockEnd = Math.min(start + BLOCK_SIZE, text.length());
+            int firstCode = nextCode;
+            int end = blockEnd;
+            boolean stored = isIncompressible(text, start);
+            if (!stored) {
+                count[0] = 0;
+                trial = true;
+                end = encode(text, start, blockEnd, buffer);
+                trial = false;
+                // Starting a new stored run costs an EOF, up to 7 bits of padding and its length
+                long storedBits = 8L * (end - start);
+                if (storedStart == storedEnd) {
+                    storedBits += TextCompressor.CODE_LENGTH + 7 + 32;
+                }
+                stored = (long) count[0] * TextCompressor.CODE_LENGTH > storedBits;
+            }
+            if (stored) {
+                undo(firstCode);
+                storedStart = (storedStart == storedEnd) ? start : storedStart;
+                storedEnd = blockEnd;
+                start = blockEnd;
+                continue;
+            }
+            writeStored(text, storedStart, storedEnd, out);
+            storedStart = storedEnd;
+            for (int i = 0; i < count[0]; i++) {
+                out.write(block[i], TextCompressor.CODE_LENGTH);
+            }
+            start = end;
+        }
+        writeStored(text, storedStart, storedEnd, out);
+    }
+
+    // Checks whether the block at start looks too random to be worth trying LZW on, from the entropy of its bytes
+    private static boolean isIncompressible(String text, int start) {
+        int end = Math.min(start + BLOCK_SIZE, text.length());
+        int[] counts = new int[256];
+        for (int i = start; i < end; i++) {
+            counts[text.charAt(i) & 0xff]++;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / (end - start);
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2) > STORED_ENTROPY;
+    }
+
+    // Takes back every code added from firstCode on, and forgets the last phrase since the block is stored instead
+    private void undo(int firstCode) {
+        for (int code = nextCode - 1; code >= firstCode; code--) {
+            String phrase = trialTexts[code].substring(trialStarts[code], trialEnds[code]);
+            if (trialReplaced[code] == TST.EMPTY) {
+                codes.remove(phrase);
+            }
+            else {
+                codes.insert(phrase, trialReplaced[code]);
+            }
+        }
+        nextCode = firstCode;
+        previousText = null;
+        previousCode = TST.EMPTY;
+    }
+
+    // Writes text from start to end as a stored run, if there is anything to store
+    private void writeStored(String text, int start, int end, BinaryOut out) {
+        if (start == end) {
+            return;
+        }
+        finish(out);
+        out.flush();
+        out.write(end - start);
+        byte[] raw = text.substring(start, end).getBytes(StandardCharsets.ISO_8859_1);
+        out.write(raw, 0, raw.length);
+    }
+
+    /**
+     * Writes the EOF code that ends the code stream.
+     * @param out Where to write the code.
+     */
+    public void finish(BinaryOut out) {
+        out.write(TextCompressor.EOF, TextCompressor.CODE_LENGTH);
+    }
+
+    // Adds the previous phrase plus the char of text at i as our next code, as long as we haven't run out of codes
+    private void addCode(String text, int i) {
+        if (nextCode >= codesLen) {
+            return;
+        }
+        joinPrevious(text, i, 1);
+        int end = previousStart + previousLength + 1;
+        int replaced = trial ? codes.lookup(previousText, previousStart, end) : TST.EMPTY;
+        codes.insert(previousText, previousStart, end, nextCode);
+        added(1, text.charAt(i), replaced);
+    }
+
+    // Records that nextCode was just given to the previous phrase plus the first length chars of the phrase
+    // with code sourceCode (which follow it in previousText), replacing the code it had before, and moves on
+    // to the next code
+    private void added(int length, int sourceCode, int replaced) {
+        baseCodes[nextCode] = previousCode;
+        sourceCodes[nextCode] = sourceCode;
+        tailLengths[nextCode] = length;
+        if (trial) {
+            trialTexts[nextCode] = previousText;
+            trialStarts[nextCode] = previousStart;
+            trialEnds[nextCode] = previousStart + previousLength + length;
+            trialReplaced[nextCode] = replaced;
+        }
+        nextCode++;
+    }
+
+    /**
+     * Saves the dictionary, next code and last phrase so that a later encoder can pick up
+     * the same code stream. Each added code is stored in 8 bytes, as its base code, the code
+     * of the phrase its tail is a prefix of, and the length of its tail.
+     * @param out Where to write the checkpoint.
+     * @throws IOException if the checkpoint can't be written.
+     */
+    public void writeCheckpoint(DataOutputStream out) throws IOException {
+        out.writeByte(CHECKPOINT_VERSION);
+        out.writeByte(TextCompressor.CODE_LENGTH);
+        out.writeByte(mode);
+        out.writeInt(nextCode);
+        out.writeInt(previousCode);
+        for (int code = TextCompressor.FIRST_CODE; code < nextCode; code++) {
+            out.writeShort(baseCodes[code]);
+            out.writeShort(sourceCodes[code]);
+            out.writeInt(tailLengths[code]);
+        }
+    }
+
+    /**
+     * Restores an encoder saved by writeCheckpoint(). The codes LZMW and LZAP added in one step
+     * are given out again by the same walk down the TST, and the phrases they stand for share
+     * one String, so even very long phrases take only a little more room than the TST itself.
+     * @param in Where to read the checkpoint from.
+     * @return an encoder in the same state as the one that was saved.
+     * @throws IOException if the checkpoint can't be read.
+     * @throws IllegalStateException if the checkpoint was made with a different code length or
+     *         layout, or doesn't match the dictionary it describes.
+     */
+    public static LZWEncoder readCheckpoint(DataInputStream in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != CHECKPOINT_VERSION) {
+            throw new IllegalStateException("Checkpoint was written in an older layout, compress the file again");
+        }
+        int codeLength = in.readUnsignedByte();
+        if (codeLength != TextCompressor.CODE_LENGTH) {
+            throw new IllegalStateException("Checkpoint uses " + codeLength + "-bit codes, not " + TextCompressor.CODE_LENGTH);
+        }
+        LZWEncoder encoder = new LZWEncoder(in.readUnsignedByte());
+        int nextCode = in.readInt();
+        int previousCode = in.readInt();
+        for (int code = TextCompressor.FIRST_CODE; code < nextCode; code++) {
+            encoder.baseCodes[code] = in.readUnsignedShort();
+            encoder.sourceCodes[code] = in.readUnsignedShort();
+            encoder.tailLengths[code] = in.readInt();
+        }
+        // Each code's phrase is the first lengths[code] chars of wholes[code], rebuilt in code order
+        // so every base and source is known by the time we need it
+        String[] wholes = new String[nextCode];
+        int[] lengths = new int[nextCode];
+        for (int code = 0; code < TextCompressor.EOF; code++) {
+            wholes[code] = "" + (char) code;
+            lengths[code] = 1;
+        }
+        for (int code = TextCompressor.FIRST_CODE; code < nextCode; ) {
+            code = encoder.restoreStep(code, nextCode, wholes, lengths);
+        }
+        encoder.nextCode = nextCode;
+        if (previousCode != TST.EMPTY) {
+            encoder.previousCode = previousCode;
+            encoder.previousText = wholes[previousCode];
+            encoder.previousStart = 0;
+            encoder.previousLength = lengths[previousCode];
+        }
+        return encoder;
+    }
+
+    // Adds the codes from code on that were added in one step (same base and source, longer and longer tails)
+    // back to the TST, returning the first code of the next step
+    private int restoreStep(int code, int nextCode, String[] wholes, int[] lengths) {
+        int base = baseCodes[code];
+        int source = sourceCodes[code];
+        int end = code + 1;
+        while (end < nextCode && baseCodes[end] == base && sourceCodes[end] == source
+                && tailLengths[end] > tailLengths[end - 1]) {
+            end++;
+        }
+        int baseLength = lengths[base];
+        String whole = wholes[base].substring(0, baseLength) + wholes[source].substring(0, lengths[source]);
+        for (int c = code; c < end; c++) {
+            wholes[c] = whole;
+            lengths[c] = baseLength + tailLengths[c];
+        }
+        if (mode == TextCompressor.LZW) {
+            // LZW can give a phrase we already have a newer code, so it is inserted rather than extended
+            codes.insert(whole, 0, lengths[code], code);
+            return code + 1;
+        }
+        int[] at = {code};
+        int added = codes.extend(whole, 0, baseLength, whole.length(), tailLengths[code], code, end, length -> {
+            if (length != tailLengths[at[0]++]) {
+                throw new IllegalStateException("Checkpoint doesn't match its dictionary");
+            }
+        });
+        if (added != end) {
+            throw new IllegalStateException("Checkpoint doesn't match its dictionary");
+        }
+        return end;
+    }
+}
@@ -0,0 +1,136 @@
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongConsumer;
+
+/**
+ *  The {@code LZWSearcher} class finds a pattern inside an LZW code stream without expanding it.
+ *  It rebuilds the dictionary from the codes, but instead of phrases it keeps a few numbers for
+ *  each code: how long it is, which KMP state reading it leaves us in, its first few chars and
+ *  the nearest code along its prefixes that ends in a match. That is enough to step a whole code
+ *  at a time while still finding every match, including ones that cross from one code into the next.
+ *  Only plain LZW streams are supported, since LZMW and LZAP need the phrases themselves to skip duplicates.
+ *
+ *  @author Kieran Pichai
+ */
+public class LZWSearcher {
+    private static final int R = 256;
+    private static final int NONE = -1;
+
+    private final String pattern;
+    private final int m;
+    // KMP automaton over the pattern, with an extra column so we keep going after a full match
+    private final int[][] dfa;
+
+    /**
+     * Builds the KMP automaton for the pattern.
+     * @param pattern The text to search for, matched against the UTF-8 bytes of the input.
+     * @throws IllegalArgumentException if the pattern is empty.
+     */
+    public LZWSearcher(String pattern) {
+        if (pattern.isEmpty()) {
+            throw new IllegalArgumentException("Pattern can't be empty");
+        }
+        // The compressed text is made of bytes, so we match the pattern's bytes too
+        this.pattern = new String(pattern.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+        m = this.pattern.length();
+        dfa = new int[R][m + 1];
+        dfa[this.pattern.charAt(0)][0] = 1;
+        for (int x = 0, j = 1; j <= m; j++) {
+            for (int c = 0; c < R; c++) {
+                dfa[c][j] = dfa[c][x];
+            }
+            if (j < m) {
+                dfa[this.pattern.charAt(j)][j] = j + 1;
+                x = dfa[this.pattern.charAt(j)][x];
+            }
+        }
+    }
+
+    /**
+     * Reads LZW codes (and any stored runs, see LZWEncoder.encodeBlocks()) from in, reporting the
+     * offset in the expanded text where each match of the pattern starts. Offsets are reported
+     * in increasing order.
+     * @param in Where to read the codes from.
+     * @param onMatch Called with the offset of each match.
+     */
+    public void search(BinaryIn in, LongConsumer onMatch) {
+        int codesLen = 1 << TextCompressor.CODE_LENGTH;
+        // What we know about each code, in place of its phrase
+        int[] parent = new int[codesLen];
+        char[] first = new char[codesLen];
+        int[] length = new int[codesLen];
+        int[] endState = new int[codesLen];
+        int[] matchLink = new int[codesLen];
+        String[] head = new String[codesLen];
+        for (int i = 0; i < TextCompressor.EOF; i++) {
+            char c = (char) i;
+            parent[i] = NONE;
+            first[i] = c;
+            length[i] = 1;
+            endState[i] = dfa[c][0];
+            matchLink[i] = (endState[i] == m) ? i : NONE;
+            head[i] = (m > 1) ? "" + c : "";
+        }
+        int maxCode = TextCompressor.FIRST_CODE;
+        int previous = NONE;
+        int state = 0;
+        long offset = 0;
+        int[] inner = new int[codesLen];
+        byte[] raw = new byte[LZWEncoder.BLOCK_SIZE];
+        while (true) {
+            int code = in.readInt(TextCompressor.CODE_LENGTH);
+            if (code == TextCompressor.EOF) {
+                // A stored run may follow, which we scan byte by byte
+                int left = LZWDecoder.readStoredLength(in);
+                if (left < 0) {
+                    break;
+                }
+                for (; left > 0; left -= raw.length) {
+                    int count = Math.min(left, raw.length);
+                    in.readBytes(raw, 0, count);
+                    for (int i = 0; i < count; i++) {
+                        state = dfa[raw[i] & 0xff][state];
+                        if (state == m) {
+                            onMatch.accept(offset + i + 1 - m);
+                        }
+                    }
+                    offset += count;
+                }
+                previous = NONE;
+                continue;
+            }
+            // Adds the code for the previous phrase plus our first char, just like expand() would
+            if (previous != NONE && maxCode < codesLen) {
+                int added = maxCode++;
+                char c = (code < added) ? first[code] : first[previous];
+                parent[added] = previous;
+                first[added] = first[previous];
+                length[added] = length[previous] + 1;
+                endState[added] = dfa[c][endState[previous]];
+                matchLink[added] = (endState[added] == m) ? added : matchLink[previous];
+                head[added] = (head[previous].length() < m - 1) ? head[previous] + c : head[previous];
+            }
+            // Matches ending in the first m - 1 chars start before this code, so they depend on our state
+            String start = head[code];
+            for (int i = 0; i < start.length(); i++) {
+                state = dfa[start.charAt(i)][state];
+                if (state == m) {
+                    onMatch.accept(offset + i + 1 - m);
+                }
+            }
+            // Longer matches lie inside the phrase, and were found once when its code was added
+            int count = 0;
+            for (int c = matchLink[code]; c != NONE; c = (parent[c] == NONE) ? NONE : matchLink[parent[c]]) {
+                inner[count++] = length[c];
+            }
+            for (int i = count - 1; i >= 0; i--) {
+                onMatch.accept(offset + inner[i] - m);
+            }
+            // Once a phrase is as long as the pattern, our state only depends on the phrase
+            if (length[code] >= m) {
+                state = endState[code];
+            }
+            offset += length[code];
+            previous = code;
+        }
+    }
+}
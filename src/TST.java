@@ -1,3 +1,6 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
 /**
  * The {@code TST} class encodes a ternary search trie for use with LZW compression.
  *
@@ -9,7 +12,17 @@
 public class TST {
 
     public static final int EMPTY = -1;
+    // Size of the direct-indexed tables, one slot per 8-bit char
+    private static final int R = 256;
     private Node root;
+    // Length of the word found by the last call to match()
+    private int matchLength;
+    // Direct-indexed shortcuts to the Nodes for every one and two char prefix of 8-bit chars,
+    // so lookups skip the comparisons at the top of the TST. insert() records them and remove()
+    // clears them again for any Node it drops. The second level has a row per first char, only
+    // allocated once a word starting with that char gets a second char, so small TSTs stay small
+    private final Node[] firstLevel = new Node[R];
+    private final Node[][] secondLevel = new Node[R][];
 
     /**
      * Each Node contains its own charater, as well as references to its three children.
@@ -19,32 +32,210 @@ public class TST {
     private class Node {
         Node left, mid, right;
         char c;
-        int code;
+        int code = EMPTY;
     }
 
     /**
-     * Recursively inserts the given word-code pair into the TST.
+     * Inserts the given word-code pair into the TST.
+     * This walks the TST iteratively, since LZMW and LZAP words can be far longer than the call stack is deep.
      * @param s The word to insert.
      * @param code The code for the given word.
      */
     public void insert(String s, int code) {
-        root = insert(s, root, code, 0);
+        insert(s, 0, s.length(), code);
+    }
+
+    /**
+     * Inserts the word made of the chars of s from start up to end, so callers can insert part
+     * of a longer text without copying it out first.
+     * @param s The text holding the word.
+     * @param start Where the word starts in s.
+     * @param end Where the word ends in s (exclusive).
+     * @param code The code for the word.
+     */
+    public void insert(String s, int start, int end, int code) {
+        // Starts below the first two chars when we already have their Nodes
+        Node n = (end - start > 2) ? second(s, start) : null;
+        if (n != null) {
+            n.mid = insert(s, start, end, n.mid, code, start + 2);
+        }
+        else {
+            root = insert(s, start, end, root, code, start);
+        }
     }
 
     public Node insert(String s, Node n, int code, int depth) {
-        char current = s.charAt(depth);
-        if(n == null) {
-            n = new Node();
-            n.c = current;
+        return insert(s, 0, s.length(), n, code, depth);
+    }
+
+    private Node insert(String s, int start, int end, Node n, int code, int depth) {
+        if (n == null) n = newNode(s.charAt(depth));
+        Node top = n;
+        while (true) {
+            char current = s.charAt(depth);
+            if (current < n.c) {
+                if (n.left == null) n.left = newNode(current);
+                n = n.left;
+            }
+            else if (current > n.c) {
+                if (n.right == null) n.right = newNode(current);
+                n = n.right;
+            }
+            else if (depth < end - 1) {
+                if (depth < start + 2) remember(s, start, depth, n);
+                depth++;
+                if (n.mid == null) n.mid = newNode(s.charAt(depth));
+                n = n.mid;
+            }
+            else {
+                if (depth < start + 2) remember(s, start, depth, n);
+                n.code = code;
+                return top;
+            }
         }
-        if (current < n.c)
-            n.left = insert(s, n.left, code, depth);
-        else if (current > n.c)
-            n.right = insert(s, n.right, code, depth);
-        else if (depth < s.length() - 1) {
-            n.mid = insert(s, n.mid, code, depth + 1);
+    }
+
+    // Records n as the Node ending the first one or two chars of the word at start in s in the direct-indexed tables
+    private void remember(String s, int start, int depth, Node n) {
+        if (depth == start && s.charAt(start) < R) {
+            firstLevel[s.charAt(start)] = n;
+        }
+        else if (depth == start + 1) {
+            rememberSecond(s.charAt(start), s.charAt(start + 1), n);
+        }
+    }
+
+    // Records n as the Node ending the two chars c0 and c1, if they fit in the direct-indexed table
+    private void rememberSecond(char c0, char c1, Node n) {
+        if (c0 < R && c1 < R) {
+            if (secondLevel[c0] == null) secondLevel[c0] = new Node[R];
+            secondLevel[c0][c1] = n;
+        }
+    }
+
+    /**
+     * Gives codes to the words made of a prefix plus each prefix of the tail that follows it
+     * at least shortest chars long, shortest first, skipping any word that already has a code.
+     * The prefix is the chars of s from start up to tailStart, and the tail runs on to end.
+     * Codes are handed out from code on, stopping once maxCode is reached.
+     * Rather than looking each word up from the top of the TST, this walks down from the prefix's Node
+     * once, one char of the tail at a time, so LZMW and LZAP pay for each char of a new phrase only once.
+     * @param s The text holding the prefix and, right after it, the tail.
+     * @param start Where the prefix starts in s.
+     * @param tailStart Where the prefix ends and the tail starts in s.
+     * @param end Where the tail ends in s (exclusive).
+     * @param shortest How many chars of the tail the shortest new word has.
+     * @param code The first code to hand out.
+     * @param maxCode One past the last code we may hand out.
+     * @param onAdd Called with how many chars of the tail each word that got a code has, in the order of their codes.
+     * @return the next code to hand out.
+     */
+    public int extend(String s, int start, int tailStart, int end, int shortest, int code, int maxCode, IntConsumer onAdd) {
+        Node n = find(s, start, tailStart);
+        if (n == null) {
+            insert(s, start, tailStart, EMPTY);
+            n = find(s, start, tailStart);
+        }
+        for (int i = tailStart; i < end && code < maxCode; i++) {
+            // Finds (or adds) the Node for the next char below n
+            char current = s.charAt(i);
+            if (n.mid == null) n.mid = newNode(current);
+            Node child = n.mid;
+            while (current != child.c) {
+                if (current < child.c) {
+                    if (child.left == null) child.left = newNode(current);
+                    child = child.left;
+                }
+                else {
+                    if (child.right == null) child.right = newNode(current);
+                    child = child.right;
+                }
+            }
+            if (i == start + 1) rememberSecond(s.charAt(start), current, child);
+            n = child;
+            if (i + 1 - tailStart >= shortest && n.code == EMPTY) {
+                n.code = code++;
+                onAdd.accept(i + 1 - tailStart);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Removes the code for the given word, and drops any Nodes that no longer lead to a coded word.
+     * This also walks the TST iteratively, keeping the path down so it can unlink Nodes on the way back up.
+     * @param s The word to remove.
+     */
+    public void remove(String s) {
+        // Every Node we pass on the way down, with the index of the char of s it was compared against
+        Node[] path = new Node[s.length()];
+        int[] depths = new int[s.length()];
+        int count = 0;
+        // Starts below the first one or two chars when we have their Nodes, which are never dropped here
+        Node top = (s.length() > 2) ? second(s, 0) : null;
+        int depth = 2;
+        if (top == null && s.length() > 1 && s.charAt(0) < R) {
+            top = firstLevel[s.charAt(0)];
+            depth = 1;
+        }
+        if (top == null) {
+            depth = 0;
+        }
+        Node n = (top == null) ? root : top.mid;
+        while (n != null) {
+            if (count == path.length) {
+                path = Arrays.copyOf(path, 2 * count);
+                depths = Arrays.copyOf(depths, 2 * count);
+            }
+            path[count] = n;
+            depths[count++] = depth;
+            char current = s.charAt(depth);
+            if (current < n.c)
+                n = n.left;
+            else if (current > n.c)
+                n = n.right;
+            else if (depth < s.length() - 1) {
+                n = n.mid;
+                depth++;
+            }
+            else break;
+        }
+        if (n == null) return;
+        n.code = EMPTY;
+        for (int i = count - 1; i >= 0; i--) {
+            Node dead = path[i];
+            if (dead.code != EMPTY || dead.left != null || dead.mid != null || dead.right != null) return;
+            forget(s, depths[i], dead);
+            if (i == 0 && top == null) root = null;
+            else if (i == 0) top.mid = null;
+            else if (path[i - 1].left == dead) path[i - 1].left = null;
+            else if (path[i - 1].mid == dead) path[i - 1].mid = null;
+            else path[i - 1].right = null;
+        }
+    }
+
+    // Clears n from the direct-indexed tables, where depth is the index of the char of s it stands for
+    private void forget(String s, int depth, Node n) {
+        if (depth == 0 && n.c < R && firstLevel[n.c] == n) {
+            firstLevel[n.c] = null;
+        }
+        else if (depth == 1 && s.charAt(0) < R && n.c < R && secondLevel[s.charAt(0)] != null
+                && secondLevel[s.charAt(0)][n.c] == n) {
+            secondLevel[s.charAt(0)][n.c] = null;
         }
-        else n.code = code;
+    }
+
+    // Returns the Node for the two chars of s starting at start, or null if there isn't one (yet)
+    private Node second(String s, int start) {
+        char c0 = s.charAt(start);
+        char c1 = s.charAt(start + 1);
+        if (c0 >= R || c1 >= R || secondLevel[c0] == null) return null;
+        return secondLevel[c0][c1];
+    }
+
+    private Node newNode(char c) {
+        Node n = new Node();
+        n.c = c;
         return n;
     }
 
@@ -77,6 +268,85 @@ public class TST {
     }
 
 
+    /**
+     * Returns the longest word stored in the TST that matches the substring of s starting at index start.
+     * Unlike getLongestPrefix, this only stops on Nodes that carry a code, so it is safe to use when
+     * not every prefix of a word has been inserted (as in LZMW and LZAP).
+     * @param s The target word, from which the substring is constructed.
+     * @param start The starting index of the substring.
+     * @return the longest coded word that starts s at index start, or the empty String if there is none.
+     */
+    public String getLongestKey(String s, int start) {
+        match(s, start);
+        return s.substring(start, start + matchLength);
+    }
+
+    /**
+     * Finds the longest word stored in the TST that starts s at index start, like getLongestKey, but
+     * returns its code and leaves its length in matchLength(), so the caller doesn't need to copy
+     * the word out or look it up again.
+     * @param s The text to match.
+     * @param start Where in s to start matching.
+     * @return the code of the longest coded word that starts s at index start, or EMPTY if there is none.
+     */
+    public int match(String s, int start) {
+        Node n = root;
+        int depth = start;
+        int end = start;
+        int code = EMPTY;
+        // Jumps straight to the Nodes for the first one and two chars when they are 8-bit
+        char first = s.charAt(start);
+        if (first < R && firstLevel[first] != null) {
+            Node one = firstLevel[first];
+            if (one.code != EMPTY) {
+                end = start + 1;
+                code = one.code;
+            }
+            if (start + 1 == s.length() || s.charAt(start + 1) >= R) {
+                n = one.mid;
+                depth = start + 1;
+            }
+            else {
+                Node two = second(s, start);
+                // Without a Node for the first two chars, nothing longer than one char can match
+                n = null;
+                if (two != null) {
+                    if (two.code != EMPTY) {
+                        end = start + 2;
+                        code = two.code;
+                    }
+                    n = two.mid;
+                    depth = start + 2;
+                }
+            }
+        }
+        while (n != null && depth < s.length()) {
+            char current = s.charAt(depth);
+            if (current < n.c)
+                n = n.left;
+            else if (current > n.c)
+                n = n.right;
+            else {
+                depth++;
+                if (n.code != EMPTY) {
+                    end = depth;
+                    code = n.code;
+                }
+                n = n.mid;
+            }
+        }
+        matchLength = end - start;
+        return code;
+    }
+
+    /**
+     * Returns the length of the word found by the last call to match().
+     * @return how many chars the last match covered, 0 if it found nothing.
+     */
+    public int matchLength() {
+        return matchLength;
+    }
+
     /**
      * Looks up the given String in the TST, returning the code associated with the word.
      * @param s The target String
@@ -84,21 +354,54 @@ public class TST {
      * present, EMPTY is returned.
      */
     public int lookup(String s) {
-        return lookup(s, root, 0);
+        return lookup(s, 0, s.length());
+    }
+
+    /**
+     * Looks up the word made of the chars of s from start up to end.
+     * @param s The text holding the word.
+     * @param start Where the word starts in s.
+     * @param end Where the word ends in s (exclusive).
+     * @return the corresponding code, or EMPTY if the word has none.
+     */
+    public int lookup(String s, int start, int end) {
+        Node n = find(s, start, end);
+        return (n == null) ? EMPTY : n.code;
     }
 
     public int lookup(String s, Node n, int depth) {
-        if (n == null) return EMPTY;
+        n = find(s, s.length(), n, depth);
+        return (n == null) ? EMPTY : n.code;
+    }
 
-        char current = s.charAt(depth);
-        if (current < n.c)
-            return lookup(s, n.left, depth);
-        else if (current > n.c)
-            return lookup(s, n.right, depth);
-        else if (depth < s.length() - 1)
-            return lookup(s, n.mid, depth + 1);
-        else return n.code;
+    // Returns the Node that ends the word from start to end in s, or null if there isn't one,
+    // jumping past the first one or two chars when we can
+    private Node find(String s, int start, int end) {
+        if (end - start == 1 && s.charAt(start) < R) {
+            Node one = firstLevel[s.charAt(start)];
+            return (one == null) ? find(s, end, root, start) : one;
+        }
+        if (end - start >= 2) {
+            Node two = second(s, start);
+            if (two != null) return (end - start == 2) ? two : find(s, end, two.mid, start + 2);
+        }
+        return find(s, end, root, start);
+    }
 
+    private Node find(String s, int end, Node n, int depth) {
+        while (n != null) {
+            char current = s.charAt(depth);
+            if (current < n.c)
+                n = n.left;
+            else if (current > n.c)
+                n = n.right;
+            else if (depth < end - 1) {
+                n = n.mid;
+                depth++;
+            }
+            else return n;
+        }
+        return null;
     }
 
     /**
@@ -2,7 +2,17 @@
  *  Compilation:  javac TextCompressor.java
  *  Execution:    java TextCompressor - < input.txt   (compress)
  *  Execution:    java TextCompressor + < input.txt   (expand)
- *  Dependencies: BinaryIn.java BinaryOut.java
+ *  Execution:    java TextCompressor - lzmw < input.txt   (compress, lzw | lzmw | lzap)
+ *  Execution:    java TextCompressor -a log.lzw < more.txt   (compress onto the end of log.lzw)
+ *  Execution:    java TextCompressor -k cacheDir < input.txt   (compress, reusing results cached in cacheDir)
+ *  Execution:    java TextCompressor grep PATTERN < input.lzw   (offsets of PATTERN, without expanding, lzw only)
+ *  Execution:    java TextCompressor head 10 < input.lzw   (first 10 lines, expanding only what they need)
+ *  Execution:    java TextCompressor -c , < table.csv   (compress each column on its own, "\t" for TSV)
+ *  Execution:    java TextCompressor +c < table.lzc   (expand a column compressed file)
+ *  Execution:    java -DcodeLength=16 TextCompressor bench alice.txt sE1.txt lzap   (time round trips, mode optional)
+ *  Dependencies: BinaryIn.java BinaryOut.java LZWEncoder.java LZWDecoder.java LZWSearcher.java ColumnCompressor.java
+ *                CompressionCache.java Benchmark.java
+ *                ExpandingReader.java TST.java
  *  Data files:   abra.txt
  *                jabberwocky.txt
  *                shakespeare.txt
@@ -21,6 +31,26 @@
  *  = 43.54% compression ratio!
  ******************************************************************************/
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
 /**
  *  The {@code TextCompressor} class provides static methods for compressing
  *  and expanding natural language through textfile input.
@@ -28,95 +58,255 @@
  *  @author Zach Blick, Kieran Pichai
  */
 public class TextCompressor {
-    // Length of codes for our compression and expansion, 12 as default
-    final private static int CODE_LENGTH = 12;
-    final private static int EOF = 256;
-    final private static int FIRST_CODE = 257;
-
-    // Compress algorithm reads in a string and compresses it using LZW compression
-    private static void compress() {
-        // Reads in string and initializes TST used for storing all codes
-        String text = BinaryStdIn.readString();
-        TST codes = new TST();
-        int codesLen = 1 << CODE_LENGTH;
-        // Assigns all initial values in the TST as well as our starting code
-        for (int i = 0; i < EOF; i++) {
-            codes.insert("" + (char)i, i);
+    // Length of codes for our compression and expansion, 12 as default, set with -DcodeLength=n (9 to 16)
+    final static int CODE_LENGTH = codeLength();
+    final static int EOF = 256;
+    final static int FIRST_CODE = 257;
+    // Dictionary growth modes: classic LZW, LZMW (previous two phrases) and LZAP (previous phrase plus each prefix of current)
+    final static int LZW = 0;
+    final static int LZMW = 1;
+    final static int LZAP = 2;
+    // Appendable files keep their encoder state next to them in a file with this suffix
+    final private static String CHECKPOINT_SUFFIX = ".ckpt";
+    // Added to the checkpoint's name while an append is writing the file it describes
+    final private static String PENDING_SUFFIX = ".tmp";
+    // Size limits for the compression cache used by -k
+    final private static long CACHE_MEMORY_BYTES = 64L << 20;
+    final private static long CACHE_DISK_BYTES = 1L << 30;
+
+    // Compress algorithm reads in a string and compresses it using LZW compression (or one of its variants)
+    private static void compress(int mode) {
+        String text = new BinaryIn().readString();
+        BinaryOut out = new BinaryOut();
+        LZWEncoder encoder = new LZWEncoder(mode);
+        encoder.encodeBlocks(text, out);
+        // Writes EOF and closes file
+        encoder.finish(out);
+        out.close();
+    }
+
+    /**
+     * Compresses input in memory, giving exactly the bytes compress() writes to standard output.
+     * @param input The bytes to compress.
+     * @param mode The dictionary growth mode, LZW, LZMW or LZAP.
+     * @return the compressed bytes.
+     */
+    static byte[] compress(byte[] input, int mode) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryOut out = new BinaryOut(bytes);
+        LZWEncoder encoder = new LZWEncoder(mode);
+        encoder.encodeBlocks(new String(input, StandardCharsets.ISO_8859_1), out);
+        encoder.finish(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Expands input in memory, giving exactly the bytes expand() writes to standard output.
+     * @param input The compressed bytes.
+     * @param mode The dictionary growth mode the input was compressed with.
+     * @return the expanded bytes.
+     */
+    static byte[] expand(byte[] input, int mode) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryOut out = new BinaryOut(bytes);
+        new LZWDecoder(mode).decode(new BinaryIn(new ByteArrayInputStream(input)), out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    // Compresses standard input through a cache kept in directory, reporting hits and misses on standard error
+    private static void compressCached(String directory, int mode) throws IOException {
+        CompressionCache cache = new CompressionCache(CACHE_MEMORY_BYTES, new File(directory), CACHE_DISK_BYTES);
+        byte[] compressed = cache.compress(System.in.readAllBytes(), mode);
+        System.out.write(compressed);
+        System.out.flush();
+        System.err.println(cache);
+    }
+
+    // Compresses standard input onto the end of fileName, picking up the code stream from its checkpoint.
+    // The new checkpoint is written next to the old one before the file is touched, and only moved into
+    // place once the file is done, so an append that dies partway is finished or undone by the next one
+    private static void append(String fileName, int mode) throws IOException {
+        File file = new File(fileName);
+        File checkpoint = new File(fileName + CHECKPOINT_SUFFIX);
+        File pending = new File(fileName + CHECKPOINT_SUFFIX + PENDING_SUFFIX);
+        String text = new BinaryIn().readString();
+        LZWEncoder encoder;
+        // Number of bits of codes already in the file, not counting the EOF code
+        long bits = 0;
+        int lastByte = 0;
+        if (!file.exists()) {
+            encoder = new LZWEncoder(mode);
         }
-        int startCode = FIRST_CODE;
-        String prefix;
-        // Loops through our text
-        for (int i = 0; i < text.length();) {
-            // Reads in prefix and its associated code
-            prefix = codes.getLongestPrefix(text, i);
-            int associatedCode = codes.lookup(prefix);
-            // Writes the code to the output file
-            BinaryStdOut.write(associatedCode, CODE_LENGTH);
-            // Printing statements for testing
-//            System.err.println("Writing: " + (associatedCode));
-            // Checks to see we aren't going out of bounds or have run out of codes
-            if (i + prefix.length() < text.length() && startCode < codesLen) {
-                char next = text.charAt(i + prefix.length());
-                // Inserts our next code into the TST for future lookups
-                codes.insert(prefix + next, startCode);
-//                System.err.println("Adding Code: " + (prefix + next) + " Code: " + startCode);
-                startCode++;
+        else {
+            boolean interrupted = pending.exists() && !finishPending(file, pending, checkpoint);
+            if (!checkpoint.exists()) {
+                throw new IllegalStateException("No checkpoint found for " + fileName + ", so it can't be appended to");
+            }
+            // The mode is part of the checkpoint, so an existing file keeps the mode it was made with
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint)))) {
+                bits = in.readLong();
+                encoder = LZWEncoder.readCheckpoint(in);
+            }
+            // Makes sure the file hasn't changed since the checkpoint was written. An interrupted append only
+            // ever wrote past the old codes, so we can write over whatever it left
+            if (file.length() != encodedLength(bits) && !(interrupted && file.length() > bits / 8)) {
+                throw new IllegalStateException("Checkpoint doesn't match " + fileName);
+            }
+            // Holds on to the last partly used byte, whose first bits belong to the last code
+            if (bits % 8 != 0) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                    raf.seek(bits / 8);
+                    lastByte = raf.read();
+                }
             }
-            // Increments our spot in the text string according to how much we wrote out in our prefix
-            i += prefix.length();
         }
-        // Writes EOF and closes file
-        BinaryStdOut.write(EOF, CODE_LENGTH);
-        BinaryStdOut.close();
+        // Codes the new text in memory, starting with the bits of the last code that shared a byte with the old EOF
+        ByteArrayOutputStream codes = new ByteArrayOutputStream();
+        BinaryOut out = new BinaryOut(codes);
+        int leftover = (int) (bits % 8);
+        if (leftover > 0) {
+            out.write(lastByte >>> (8 - leftover), leftover);
+        }
+        encoder.encodeBlocks(text, out);
+        // Stored runs pad to a byte, so we count what was written rather than the codes
+        long newBits = (bits / 8) * 8 + out.bitsWritten();
+        encoder.finish(out);
+        out.close();
+        // Saves where the codes will end and the encoder state, so the next append only costs its own input
+        try (DataOutputStream ckpt = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pending)))) {
+            ckpt.writeLong(newBits);
+            encoder.writeCheckpoint(ckpt);
+        }
+        // Writes over the old EOF code and padding, and only then swaps in the new checkpoint
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(bits / 8);
+            raf.write(codes.toByteArray());
+            raf.setLength(raf.getFilePointer());
+            raf.getFD().sync();
+        }
+        Files.move(pending.toPath(), checkpoint.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Deals with the checkpoint left by an append that died before moving it into place. If the file got all of that
+    // append's codes, the checkpoint is moved into place and we return true. Otherwise it is deleted and we return false
+    private static boolean finishPending(File file, File pending, File checkpoint) throws IOException {
+        long bits;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(pending)))) {
+            bits = in.readLong();
+        }
+        catch (EOFException e) {
+            bits = -1;
+        }
+        if (bits >= 0 && file.length() == encodedLength(bits)) {
+            Files.move(pending.toPath(), checkpoint.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        }
+        Files.delete(pending.toPath());
+        return false;
+    }
+
+    // Returns how many bytes a file with this many bits of codes takes, counting the EOF code and padding
+    private static long encodedLength(long bits) {
+        return (bits + CODE_LENGTH + 7) / 8;
     }
 
     // Expands code via a compressed txt file
-    private static void expand() {
-        // Map used to access codes and their corresponding string values
-        int codesLen = 1 << CODE_LENGTH;
-        String[] codes = new String[codesLen];
-        // Fills it with known values (ASCII)
-        for (int i = 0; i <= EOF; i++) {
-            codes[i] = "" + (char) i;
-            if (i == EOF) {
-                codes[i] = "";
+    private static void expand(int mode) {
+        BinaryOut out = new BinaryOut();
+        new LZWDecoder(mode).decode(new BinaryIn(), out);
+        out.close();
+    }
+
+    // Prints the first lines of the compressed standard input, decoding no further than it has to
+    private static void head(int lines, int mode) throws IOException {
+        BinaryOut out = new BinaryOut();
+        ExpandingReader reader = new ExpandingReader(System.in, mode);
+        char[] buffer = new char[LZWEncoder.BLOCK_SIZE];
+        int count;
+        try {
+            while (lines > 0 && (count = reader.read(buffer, 0, buffer.length)) != -1) {
+                for (int i = 0; i < count && lines > 0; i++) {
+                    out.write(buffer[i]);
+                    if (buffer[i] == '\n') {
+                        lines--;
+                    }
+                }
             }
         }
-        // Reads in and initializes all necessary values to expand based off of current and future values
-        int maxCode = FIRST_CODE;
-        int valCode = BinaryStdIn.readInt(CODE_LENGTH);
-        String val = codes[valCode];
-        BinaryStdOut.write(val);
-        int nextCode;
-        // Infinite loop to be broken when EOF is seen
-        while (true) {
-            // Checks next code to see if we will exit then
-            nextCode = BinaryStdIn.readInt(CODE_LENGTH);
-            if (nextCode == EOF) {
-                break;
-            }
-            // Makes our entry string which represents what we will write out to our BinaryStdOut file
-            String entry;
-            if (nextCode < maxCode && codes[nextCode] != null) {
-                entry = codes[nextCode];
-            } else {
-                // Special case where we don't know where our current code to add, use know val instead
-                entry = val + val.charAt(0);
-            }
-            BinaryStdOut.write(entry);
-            // Checks if space left and if so adds more to codes
-            if (maxCode < codesLen) {
-                codes[maxCode++] = val + entry.charAt(0);
-            }
-            // Continues along codes by moving to next
-            val = entry;
+        finally {
+            reader.close();
+            out.close();
+        }
+    }
+
+    // Compresses delimited text with one dictionary per column
+    private static void compressColumns(char delimiter, int mode) {
+        BinaryOut out = new BinaryOut();
+        ColumnCompressor.compress(new BinaryIn().readString(), delimiter, mode, out);
+        out.close();
+    }
+
+    // Expands a column compressed file back into its rows
+    private static void expandColumns() {
+        BinaryOut out = new BinaryOut();
+        out.write(ColumnCompressor.expand(new BinaryIn()));
+        out.close();
+    }
+
+    // Reads the code length from the codeLength system property, which has to fit EOF and can't outgrow our 16-bit checkpoints
+    private static int codeLength() {
+        int length = Integer.getInteger("codeLength", 12);
+        if (length < 9 || length > 16) {
+            throw new IllegalArgumentException("codeLength must be between 9 and 16, not " + length);
         }
-        BinaryStdOut.close();
+        return length;
+    }
+
+    // Parses the optional delimiter argument at index, defaulting to a comma
+    private static char parseDelimiter(String[] args, int index) {
+        if (args.length <= index) return ',';
+        if (args[index].equals("\\t")) return '\t';
+        if (args[index].length() != 1) throw new IllegalArgumentException("Delimiter must be one char: " + args[index]);
+        return args[index].charAt(0);
+    }
+
+    // Prints the offset of every match of pattern in the compressed standard input, one per line
+    private static void grep(String pattern, int mode) {
+        // LZMW and LZAP skip duplicate phrases, which LZWSearcher can't follow without the phrases themselves
+        if (mode != LZW) throw new IllegalArgumentException("grep only works on lzw streams");
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        new LZWSearcher(pattern).search(new BinaryIn(), out::println);
+        out.flush();
+    }
+
+    // Parses the optional dictionary growth mode argument at index, defaulting to plain LZW
+    private static int parseMode(String[] args, int index) {
+        if (args.length <= index || args[index].equals("lzw")) return LZW;
+        if (args[index].equals("lzmw")) return LZMW;
+        if (args[index].equals("lzap")) return LZAP;
+        throw new IllegalArgumentException("Unknown mode: " + args[index]);
+    }
+
+    // Benchmarks the files named after "bench", in the mode given by the last argument if it names one
+    private static void bench(String[] args) throws IOException {
+        String last = args[args.length - 1];
+        boolean hasMode = args.length > 2 && (last.equals("lzw") || last.equals("lzmw") || last.equals("lzap"));
+        int end = hasMode ? args.length - 1 : args.length;
+        Benchmark.run(Arrays.copyOfRange(args, 1, end), parseMode(args, end));
     }
 
-    public static void main(String[] args) {
-        if      (args[0].equals("-")) compress();
-        else if (args[0].equals("+")) expand();
+    public static void main(String[] args) throws IOException {
+        if      (args[0].equals("-")) compress(parseMode(args, 1));
+        else if (args[0].equals("+")) expand(parseMode(args, 1));
+        else if (args[0].equals("-a")) append(args[1], parseMode(args, 2));
+        else if (args[0].equals("-k")) compressCached(args[1], parseMode(args, 2));
+        else if (args[0].equals("grep")) grep(args[1], parseMode(args, 2));
+        else if (args[0].equals("head")) head(Integer.parseInt(args[1]), parseMode(args, 2));
+        else if (args[0].equals("bench")) bench(args);
+        else if (args[0].equals("-c")) compressColumns(parseDelimiter(args, 1), parseMode(args, 2));
+        else if (args[0].equals("+c")) expandColumns();
         else throw new IllegalArgumentException("Illegal command line argument");
     }
-}
\ No newline at end of file
+}